@@ -8,14 +8,18 @@ import java.io.IOException;
 import java.io.InputStreamReader;
 import java.io.OutputStreamWriter;
 import java.io.Writer;
+import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.TreeMap;
-import java.util.stream.Collectors;
 
 import org.jsoup.Connection;
 import org.jsoup.Connection.Method;
@@ -30,6 +34,53 @@ import org.jsoup.select.Elements;
 /** Anki verb notes generator */
 public class Main {
 
+    /** Known verbs fetched to check selectors before launching the batch */
+    public static final List<String> PREFLIGHT_VERBS = Arrays.asList("donner", "finir");
+
+    /** Number of conjugations per time */
+    public static final int CONJUGATION_COUNT = 6;
+
+    /** Times per mode, keyed by prompt number */
+    private static final Map<String, Map<String, String>> TIME_MAP = new TreeMap<>();
+
+    /** Compound times (conjugated with an auxiliary) per mode */
+    private static final Map<String, Set<String>> COMPOUND_TIME_MAP = new HashMap<>();
+
+    static {
+        putTime("INDICATIF", "Présent", false);
+        putTime("INDICATIF", "Imparfait", false);
+        putTime("INDICATIF", "Passé simple", false);
+        putTime("INDICATIF", "Futur simple", false);
+        putTime("INDICATIF", "Passé composé", true);
+        putTime("INDICATIF", "Plus-que-parfait", true);
+        putTime("INDICATIF", "Passé antérieur", true);
+        putTime("INDICATIF", "Futur antérieur", true);
+
+        putTime("CONDITIONNEL", "Présent", false);
+        putTime("CONDITIONNEL", "Passé", true);
+
+        putTime("SUBJONCTIF", "Présent", false);
+        putTime("SUBJONCTIF", "Imparfait", false);
+        putTime("SUBJONCTIF", "Passé", true);
+        putTime("SUBJONCTIF", "Plus-que-parfait", true);
+    }
+
+    /**
+     * Register a time for the provided mode.
+     * @param mode
+     * @param time
+     * @param compound true: conjugated with an auxiliary
+     */
+    private static void putTime(String mode, String time, boolean compound) {
+        Map<String, String> modeMap = TIME_MAP.computeIfAbsent(mode, k -> new TreeMap<>());
+        modeMap.put(String.valueOf(modeMap.size() + 1), time);
+
+        Set<String> compoundTimes = COMPOUND_TIME_MAP.computeIfAbsent(mode, k -> new HashSet<>());
+        if (compound) {
+            compoundTimes.add(time);
+        }
+    }
+
     /**
      * Generate Anki verb notes.
      * @param args
@@ -39,10 +90,12 @@ public class Main {
         // Prompt user input
         String mode = null;
         String time = null;
+        NoteEncoder.Format format = null;
         List<String> verbList = null;
         try (BufferedReader br = new BufferedReader(new InputStreamReader(System.in))) {
             mode = promptInputMode(br);
             time = promptInputTime(br, mode);
+            format = promptInputFormat(br);
             boolean loadFile = promptLoadFile(br);
             if (loadFile) {
                 String inputFile = "input.txt";
@@ -52,36 +105,46 @@ public class Main {
             }
         }
 
+        // Nothing to process
+        if (verbList.isEmpty()) {
+            System.out.println("Aucun verbe à traiter.");
+            return;
+        }
+
+        // Check selectors before launching the batch
+        preflightCheck(PREFLIGHT_VERBS, mode, time);
+        Thread.sleep(500);
+
         // Console log
         System.out.println("Les verbes suivants ont été traités.");
 
-        // Output all notes
-        List<String> allNoteList = new ArrayList<>();
-        for (int i = 0; i < verbList.size(); i++) {
-            String verb = verbList.get(i);
-
-            // Delay loop to avoid spamming server with requests
-            if (i != 0) {
-                Thread.sleep(500);
+        // Output all notes to temporary file, previous output is kept if a verb fails
+        Path outputPath = Paths.get("output.txt");
+        Path tempPath = Paths.get("output.txt.tmp");
+        NoteEncoder encoder = new NoteEncoder(format);
+        try {
+            try (Writer out = new BufferedWriter(
+                    new OutputStreamWriter(new FileOutputStream(tempPath.toFile()), "UTF-8"))) {
+                for (int i = 0; i < verbList.size(); i++) {
+                    String verb = verbList.get(i);
+
+                    // Delay loop to avoid spamming server with requests
+                    if (i != 0) {
+                        Thread.sleep(500);
+                    }
+
+                    // Output single note
+                    writeSingleNote(out, encoder, verb, mode, time);
+                    out.write(System.lineSeparator());
+                    System.out.println(verb);
+                }
             }
 
-            // Output single note
-            String singleNote = outputSingleNote(verb, mode, time);
-            allNoteList.add(singleNote);
-            System.out.println(verb);
+            // Replace output file once all notes are written
+            Files.move(tempPath, outputPath, StandardCopyOption.REPLACE_EXISTING);
+        } finally {
+            Files.deleteIfExists(tempPath);
         }
-
-        // Generate output file content
-        StringBuilder sb = new StringBuilder();
-        for (String note : allNoteList) {
-            sb.append(note);
-            sb.append(System.lineSeparator());
-        }
-        String output = sb.toString();
-
-        // Output file
-        String outputFile = "output.txt";
-        writeToFile(outputFile, output);
     }
 
     /**
@@ -123,34 +186,8 @@ public class Main {
      * @throws Exception
      */
     public static String promptInputTime(BufferedReader br, String mode) throws Exception {
-        // Prepare maps
-        Map<String, String> indicatifMap = new TreeMap<>();
-        indicatifMap.put("1", "Présent");
-        indicatifMap.put("2", "Imparfait");
-        indicatifMap.put("3", "Passé simple");
-        indicatifMap.put("4", "Futur simple");
-        indicatifMap.put("5", "Passé composé");
-        indicatifMap.put("6", "Plus-que-parfait");
-        indicatifMap.put("7", "Passé antérieur");
-        indicatifMap.put("8", "Futur antérieur");
-
-        Map<String, String> conditionnelMap = new TreeMap<>();
-        conditionnelMap.put("1", "Présent");
-        conditionnelMap.put("2", "Passé");
-
-        Map<String, String> subjonctifMap = new TreeMap<>();
-        subjonctifMap.put("1", "Présent");
-        subjonctifMap.put("2", "Imparfait");
-        subjonctifMap.put("3", "Passé");
-        subjonctifMap.put("4", "Plus-que-parfait");
-
-        Map<String, Map<String, String>> timeMap = new TreeMap<>();
-        timeMap.put("INDICATIF", indicatifMap);
-        timeMap.put("CONDITIONNEL", conditionnelMap);
-        timeMap.put("SUBJONCTIF", subjonctifMap);
-
         // Output prompt
-        Map<String, String> modeMap = timeMap.get(mode);
+        Map<String, String> modeMap = TIME_MAP.get(mode);
         List<String> keys = new ArrayList<String>(modeMap.keySet());
         System.out.println("Choisissez un temps.");
         for (int i = 0; i < keys.size(); i++) {
@@ -171,6 +208,32 @@ public class Main {
         return time;
     }
 
+    /**
+     * Prompt user for output format.
+     * @param br buffered reader
+     * @return format
+     * @throws Exception
+     */
+    public static NoteEncoder.Format promptInputFormat(BufferedReader br) throws Exception {
+        // Prepare map
+        Map<String, NoteEncoder.Format> formatMap = new HashMap<>();
+        formatMap.put("1", NoteEncoder.Format.CSV);
+        formatMap.put("2", NoteEncoder.Format.TSV);
+        formatMap.put("3", NoteEncoder.Format.HTML);
+
+        // Output prompt
+        String prompt = "Choisissez un format.\r\n1 - CSV\r\n2 - TSV\r\n3 - HTML";
+        System.out.println(prompt);
+
+        // Prompt input
+        NoteEncoder.Format format = null;
+        while (format == null) {
+            String input = br.readLine();
+            format = formatMap.get(input);
+        }
+        return format;
+    }
+
     /**
      * Prompt user whether to load verbs from file.
      * @param br
@@ -238,7 +301,8 @@ public class Main {
     }
 
     /**
-     * Output a single anki note.
+     * Output a single anki note in csv format. Convenience wrapper around
+     * {@link #writeSingleNote} for callers that need the note as a string.
      * @param verb
      * @param mode
      * @param time
@@ -246,26 +310,150 @@ public class Main {
      * @throws Exception
      */
     public static String outputSingleNote(String verb, String mode, String time) throws Exception {
+        StringBuilder sb = new StringBuilder();
+        writeSingleNote(sb, new NoteEncoder(NoteEncoder.Format.CSV), verb, mode, time);
+        return sb.toString();
+    }
+
+    /**
+     * Write a single anki note to the provided output.
+     * @param out
+     * @param encoder
+     * @param verb
+     * @param mode
+     * @param time
+     * @throws Exception
+     */
+    public static void writeSingleNote(Appendable out, NoteEncoder encoder, String verb, String mode, String time)
+            throws Exception {
         // Fetch html document
-        String url = "https://conjugaison.bescherelle.com/verbes/" + verb;
-        Document document = fetchHTMLDocument(url);
+        Document document = fetchVerbDocument(verb);
 
         // Parse conjugations
         List<String> conjugationList = parseConjugation(document, mode, time);
 
-        // Generate GUID (Global Unique Identifier)
+        // Write note
+        writeNote(out, encoder, verb, mode, time, conjugationList);
+    }
+
+    /**
+     * Write note fields to the provided output.
+     * @param out
+     * @param encoder
+     * @param verb
+     * @param mode
+     * @param time
+     * @param conjugationList
+     * @throws IOException
+     */
+    public static void writeNote(Appendable out, NoteEncoder encoder, String verb, String mode, String time,
+            List<String> conjugationList) throws IOException {
+        // Write GUID (Global Unique Identifier)
         String guid = (verb + "-" + mode + "-" + time).toLowerCase();
+        encoder.writeField(out, guid);
+
+        // Write verb, mode and time
+        encoder.writeSeparator(out);
+        encoder.writeField(out, verb);
+        encoder.writeSeparator(out);
+        encoder.writeField(out, mode + " " + time);
+
+        // Write conjugations
+        for (String conjugation : conjugationList) {
+            encoder.writeSeparator(out);
+            encoder.writeField(out, conjugation);
+        }
+    }
 
-        // Generate conjugation list
-        List<String> singleNoteList = new ArrayList<>();
-        singleNoteList.add(guid);
-        singleNoteList.add(verb);
-        singleNoteList.add(mode + " " + time);
-        singleNoteList.addAll(conjugationList);
+    /**
+     * Check that the site markup still matches the conjugation selectors, by
+     * fetching known verbs before launching the batch.
+     * @param verbs known verbs
+     * @param mode
+     * @param time
+     * @throws Exception
+     */
+    public static void preflightCheck(List<String> verbs, String mode, String time) throws Exception {
+        for (int i = 0; i < verbs.size(); i++) {
+            String verb = verbs.get(i);
+
+            // Delay loop to avoid spamming server with requests
+            if (i != 0) {
+                Thread.sleep(500);
+            }
+
+            // Fetch html document
+            Document document = fetchVerbDocument(verb);
+
+            // Check selectors
+            checkSelectors(document, verb, mode, time);
+        }
+    }
+
+    /**
+     * Check that every conjugation selector resolves in the provided html
+     * document, and that each of the 6 conjugation rows contains a pronoun,
+     * a verb and, for compound times, an auxiliary.
+     * @param document
+     * @param verb
+     * @param mode
+     * @param time
+     */
+    public static void checkSelectors(Document document, String verb, String mode, String time) {
+        // Check selector chain
+        List<String> selectorChain = buildSelectorChain(mode, time);
+        for (String selector : selectorChain) {
+            if (document.select(selector).isEmpty()) {
+                throw new RuntimeException("Sélecteur introuvable (" + verb + ") : " + selector);
+            }
+        }
+
+        // Check conjugation rows
+        String selector = selectorChain.get(selectorChain.size() - 1);
+        Elements children = document.select(selector).first().children();
+        if (children.size() != CONJUGATION_COUNT) {
+            throw new RuntimeException("Nombre de conjugaisons incorrect (" + verb + ") : " + children.size()
+                    + " au lieu de " + CONJUGATION_COUNT + " : " + selector);
+        }
 
-        // Output single note
-        String singleNote = singleNoteList.stream().map(s -> "\"" + s + "\"").collect(Collectors.joining("; "));
-        return singleNote;
+        // Check conjugation elements (auxiliary is only present in compound times)
+        List<String> elementSelectors = new ArrayList<>();
+        elementSelectors.add("personal-pronoun");
+        if (isCompoundTime(mode, time)) {
+            elementSelectors.add("auxiliary");
+        }
+        elementSelectors.add("verb");
+        for (Element child : children) {
+            for (String elementSelector : elementSelectors) {
+                if (child.select(elementSelector).text().isEmpty()) {
+                    throw new RuntimeException("Sélecteur introuvable (" + verb + ") : " + selector + ">"
+                            + elementSelector);
+                }
+            }
+        }
+    }
+
+    /**
+     * Whether the provided time is a compound time (conjugated with an
+     * auxiliary).
+     * @param mode
+     * @param time
+     * @return true: compound, false: simple
+     */
+    public static boolean isCompoundTime(String mode, String time) {
+        Set<String> compoundTimes = COMPOUND_TIME_MAP.get(mode);
+        return compoundTimes != null && compoundTimes.contains(time);
+    }
+
+    /**
+     * Fetch html document of the provided verb.
+     * @param verb
+     * @return html document
+     * @throws IOException
+     */
+    public static Document fetchVerbDocument(String verb) throws IOException {
+        String url = "https://conjugaison.bescherelle.com/verbes/" + verb;
+        return fetchHTMLDocument(url);
     }
 
     /**
@@ -290,6 +478,27 @@ public class Main {
         return document;
     }
 
+    /**
+     * Build conjugation selectors, from the active container down to the
+     * conjugation rows. Each selector extends the previous one, the last one
+     * selects the conjugation rows.
+     * @param mode
+     * @param time
+     * @return selector chain
+     */
+    public static List<String> buildSelectorChain(String mode, String time) {
+        String containerSelector = "#nav-tabContent-active-passive>div.active"; // select active container
+        String modeSelector = "h4.card-title:contains(" + mode + ")";
+        String timeSelector = "h5.card-title:contains(" + time + ")";
+
+        List<String> selectorChain = new ArrayList<>();
+        selectorChain.add(containerSelector);
+        selectorChain.add(containerSelector + " " + modeSelector);
+        selectorChain.add(containerSelector + " " + modeSelector + "~div " + timeSelector);
+        selectorChain.add(containerSelector + " " + modeSelector + "~div " + timeSelector + "+div");
+        return selectorChain;
+    }
+
     /**
      * Parse conjugations from the provided html document.
      * @param document
@@ -299,10 +508,8 @@ public class Main {
      */
     public static List<String> parseConjugation(Document document, String mode, String time) {
         // Selectors
-        String containerSelector = "#nav-tabContent-active-passive>div.active"; // select active container
-        String modeSelector = "h4.card-title:contains(" + mode + ")";
-        String timeSelector = "h5.card-title:contains(" + time + ")";
-        String selector = containerSelector + " " + modeSelector + "~div " + timeSelector + "+div";
+        List<String> selectorChain = buildSelectorChain(mode, time);
+        String selector = selectorChain.get(selectorChain.size() - 1);
 
         // Element selection
         Elements conjugationElements = document.select(selector);
@@ -345,16 +552,4 @@ public class Main {
         return conjugation.toString();
     }
 
-    /**
-     * Write string to file.
-     * @param fileName
-     * @param text
-     * @throws IOException
-     */
-    public static void writeToFile(String fileName, String text) throws IOException {
-        try (Writer out = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(fileName), "UTF-8"))) {
-            out.write(text);
-        }
-    }
-
 }
@@ -0,0 +1,145 @@
+package com.nicolas.abroad.main;
+
+import java.io.IOException;
+
+/** Anki note encoder */
+public class NoteEncoder {
+
+    /** Anki import formats */
+    public enum Format {
+        /** Quoted fields separated by a bare semicolon, embedded quotes doubled. */
+        CSV,
+        /** Fields separated by tabs, quoted only when needed. */
+        TSV,
+        /** HTML escaped fields separated by tabs. */
+        HTML
+    }
+
+    private final Format format;
+
+    /**
+     * Constructor.
+     * @param format
+     */
+    public NoteEncoder(Format format) {
+        this.format = format;
+    }
+
+    /**
+     * Write field separator.
+     * @param out
+     * @throws IOException
+     */
+    public void writeSeparator(Appendable out) throws IOException {
+        if (format == Format.CSV) {
+            out.append(';');
+        } else {
+            out.append('\t');
+        }
+    }
+
+    /**
+     * Write a single field, escaped for the current format.
+     * @param out
+     * @param field
+     * @throws IOException
+     */
+    public void writeField(Appendable out, CharSequence field) throws IOException {
+        switch (format) {
+        case CSV:
+            writeCsvField(out, field);
+            break;
+        case TSV:
+            writeTsvField(out, field);
+            break;
+        case HTML:
+            writeHtmlField(out, field);
+            break;
+        default:
+            throw new IllegalStateException("Format inconnu : " + format);
+        }
+    }
+
+    /**
+     * Write a quoted csv field. Quotes are doubled.
+     * @param out
+     * @param field
+     * @throws IOException
+     */
+    private static void writeCsvField(Appendable out, CharSequence field) throws IOException {
+        out.append('"');
+        int start = 0;
+        for (int i = 0; i < field.length(); i++) {
+            if (field.charAt(i) == '"') {
+                out.append(field, start, i + 1);
+                out.append('"');
+                start = i + 1;
+            }
+        }
+        out.append(field, start, field.length());
+        out.append('"');
+    }
+
+    /**
+     * Write a tsv field. Fields containing tabs, line breaks or quotes are
+     * written as quoted csv fields.
+     * @param out
+     * @param field
+     * @throws IOException
+     */
+    private static void writeTsvField(Appendable out, CharSequence field) throws IOException {
+        for (int i = 0; i < field.length(); i++) {
+            char c = field.charAt(i);
+            if (c == '\t' || c == '\r' || c == '\n' || c == '"') {
+                writeCsvField(out, field);
+                return;
+            }
+        }
+        out.append(field);
+    }
+
+    /**
+     * Write an html field. Special characters are escaped, tabs are replaced
+     * with spaces and line breaks with &lt;br&gt;.
+     * @param out
+     * @param field
+     * @throws IOException
+     */
+    private static void writeHtmlField(Appendable out, CharSequence field) throws IOException {
+        int start = 0;
+        for (int i = 0; i < field.length(); i++) {
+            String replacement;
+            char c = field.charAt(i);
+            switch (c) {
+            case '&':
+                replacement = "&amp;";
+                break;
+            case '<':
+                replacement = "&lt;";
+                break;
+            case '>':
+                replacement = "&gt;";
+                break;
+            case '"':
+                replacement = "&quot;";
+                break;
+            case '\t':
+                replacement = " ";
+                break;
+            case '\n':
+                replacement = "<br>";
+                break;
+            case '\r':
+                replacement = "";
+                break;
+            default:
+                continue;
+            }
+            out.append(field, start, i);
+            out.append(replacement);
+            start = i + 1;
+        }
+        out.append(field, start, field.length());
+    }
+
+}
@@ -1,15 +1,20 @@
 package com.nicolas.abroad.main;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
 import java.io.BufferedReader;
 import java.io.ByteArrayInputStream;
 import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.util.Arrays;
 import java.util.List;
 
 import org.jsoup.HttpStatusException;
+import org.jsoup.Jsoup;
+import org.jsoup.nodes.Document;
 import org.jsoup.nodes.Element;
 import org.junit.Test;
 
@@ -159,6 +164,47 @@ public class MainTest {
         inputFileStream.close();
     }
 
+    // ----------------------------------
+    // promptInputFormat
+    // ----------------------------------
+
+    /**
+     * Happy path. Test all patterns with correct input.
+     * @throws Exception
+     */
+    @Test
+    public void testPromptInputFormat1() throws Exception {
+        String text = "1\r\n2\r\n3";
+        InputStream inputFileStream = new ByteArrayInputStream(text.getBytes());
+        try (BufferedReader br = new BufferedReader(new InputStreamReader(inputFileStream))) {
+            NoteEncoder.Format output = Main.promptInputFormat(br);
+            assertEquals(NoteEncoder.Format.CSV, output);
+
+            output = Main.promptInputFormat(br);
+            assertEquals(NoteEncoder.Format.TSV, output);
+
+            output = Main.promptInputFormat(br);
+            assertEquals(NoteEncoder.Format.HTML, output);
+        }
+        inputFileStream.close();
+    }
+
+    /**
+     * Happy path. Test using incorrect input several times before using correct
+     * input.
+     * @throws Exception
+     */
+    @Test
+    public void testPromptInputFormat2() throws Exception {
+        String text = "4\r\n\r\n2";
+        InputStream inputFileStream = new ByteArrayInputStream(text.getBytes());
+        try (BufferedReader br = new BufferedReader(new InputStreamReader(inputFileStream))) {
+            NoteEncoder.Format output = Main.promptInputFormat(br);
+            assertEquals(NoteEncoder.Format.TSV, output);
+        }
+        inputFileStream.close();
+    }
+
     // ----------------------------------
     // promptLoadFile
     // ----------------------------------
@@ -233,7 +279,7 @@ public class MainTest {
         String mode = "INDICATIF";
         String time = "Imparfait";
         String note = Main.outputSingleNote(verb, mode, time);
-        String expected = "\"donner-indicatif-imparfait\"; \"donner\"; \"INDICATIF Imparfait\"; \"je donnais\"; \"tu donnais\"; \"il (elle) donnait\"; \"nous donnions\"; \"vous donniez\"; \"ils (elles) donnaient\"";
+        String expected = "\"donner-indicatif-imparfait\";\"donner\";\"INDICATIF Imparfait\";\"je donnais\";\"tu donnais\";\"il (elle) donnait\";\"nous donnions\";\"vous donniez\";\"ils (elles) donnaient\"";
         assertEquals(expected, note);
     }
 
@@ -285,6 +331,223 @@ public class MainTest {
         }
     }
 
+    // ----------------------------------
+    // writeNote
+    // ----------------------------------
+
+    /**
+     * Happy path. Write one note in csv format.
+     * @throws Exception
+     */
+    @Test
+    public void testWriteNote1() throws Exception {
+        List<String> conjugationList = Arrays.asList("je donnais", "tu donnais");
+        StringBuilder sb = new StringBuilder();
+        Main.writeNote(sb, new NoteEncoder(NoteEncoder.Format.CSV), "donner", "INDICATIF", "Imparfait", conjugationList);
+        String expected = "\"donner-indicatif-imparfait\";\"donner\";\"INDICATIF Imparfait\";\"je donnais\";\"tu donnais\"";
+        assertEquals(expected, sb.toString());
+    }
+
+    /**
+     * Happy path. Write one note in tsv format.
+     * @throws Exception
+     */
+    @Test
+    public void testWriteNote2() throws Exception {
+        List<String> conjugationList = Arrays.asList("je donnais", "tu donnais");
+        StringBuilder sb = new StringBuilder();
+        Main.writeNote(sb, new NoteEncoder(NoteEncoder.Format.TSV), "donner", "INDICATIF", "Imparfait", conjugationList);
+        String expected = "donner-indicatif-imparfait\tdonner\tINDICATIF Imparfait\tje donnais\ttu donnais";
+        assertEquals(expected, sb.toString());
+    }
+
+    // ----------------------------------
+    // checkSelectors
+    // ----------------------------------
+
+    /**
+     * Generate html document with the expected markup.
+     * @param rows conjugation rows
+     * @return html document
+     */
+    private Document createConjugationDocument(String rows) {
+        return createConjugationDocument("Imparfait", rows);
+    }
+
+    /**
+     * Generate html document with the expected markup.
+     * @param time
+     * @param rows conjugation rows
+     * @return html document
+     */
+    private Document createConjugationDocument(String time, String rows) {
+        String html = "<div id=\"nav-tabContent-active-passive\"><div class=\"active\">"
+                + "<h4 class=\"card-title\">INDICATIF</h4>"
+                + "<div><h5 class=\"card-title\">" + time + "</h5><div>" + rows + "</div></div>"
+                + "</div></div>";
+        return Jsoup.parse(html);
+    }
+
+    /**
+     * Generate conjugation rows, repeating the provided row for each
+     * conjugation.
+     * @param row conjugation row
+     * @return conjugation rows
+     */
+    private String createConjugationRows(String row) {
+        StringBuilder rows = new StringBuilder();
+        for (int i = 0; i < Main.CONJUGATION_COUNT; i++) {
+            rows.append(row);
+        }
+        return rows.toString();
+    }
+
+    /**
+     * Generate a conjugation row.
+     * @param pronoun
+     * @param verb
+     * @return conjugation row
+     */
+    private String createConjugationRow(String pronoun, String verb) {
+        return "<p><personal-pronoun>" + pronoun + "</personal-pronoun><verb>" + verb + "</verb></p>";
+    }
+
+    /**
+     * Happy path. All selectors resolve.
+     * @throws Exception
+     */
+    @Test
+    public void testCheckSelectors1() throws Exception {
+        String rows = createConjugationRows(createConjugationRow("je ", "donnais"));
+        Document document = createConjugationDocument(rows);
+        Main.checkSelectors(document, "donner", "INDICATIF", "Imparfait");
+    }
+
+    /**
+     * Unhappy path. Time selector does not resolve.
+     * @throws Exception
+     */
+    @Test
+    public void testCheckSelectors2() throws Exception {
+        String rows = createConjugationRows(createConjugationRow("je ", "donnais"));
+        Document document = createConjugationDocument(rows);
+        try {
+            Main.checkSelectors(document, "donner", "INDICATIF", "kebab");
+            fail();
+        } catch (RuntimeException e) {
+            assertTrue(e.getMessage().endsWith("h5.card-title:contains(kebab)"));
+        }
+    }
+
+    /**
+     * Unhappy path. Incorrect number of conjugation rows.
+     * @throws Exception
+     */
+    @Test
+    public void testCheckSelectors3() throws Exception {
+        Document document = createConjugationDocument(createConjugationRow("je ", "donnais"));
+        try {
+            Main.checkSelectors(document, "donner", "INDICATIF", "Imparfait");
+            fail();
+        } catch (RuntimeException e) {
+            assertTrue(e.getMessage().startsWith("Nombre de conjugaisons incorrect (donner) : 1 au lieu de 6"));
+        }
+    }
+
+    /**
+     * Unhappy path. Missing verb element.
+     * @throws Exception
+     */
+    @Test
+    public void testCheckSelectors4() throws Exception {
+        String rows = createConjugationRows(createConjugationRow("je ", ""));
+        Document document = createConjugationDocument(rows);
+        try {
+            Main.checkSelectors(document, "donner", "INDICATIF", "Imparfait");
+            fail();
+        } catch (RuntimeException e) {
+            assertTrue(e.getMessage().endsWith(">verb"));
+        }
+    }
+
+    /**
+     * Unhappy path. Container selector does not resolve.
+     * @throws Exception
+     */
+    @Test
+    public void testCheckSelectors5() throws Exception {
+        Document document = Jsoup.parse("<div id=\"nav-tabContent-active-passive\"><div></div></div>");
+        try {
+            Main.checkSelectors(document, "donner", "INDICATIF", "Imparfait");
+            fail();
+        } catch (RuntimeException e) {
+            assertTrue(e.getMessage().endsWith(" : #nav-tabContent-active-passive>div.active"));
+        }
+    }
+
+    /**
+     * Unhappy path. Mode selector does not resolve.
+     * @throws Exception
+     */
+    @Test
+    public void testCheckSelectors6() throws Exception {
+        String rows = createConjugationRows(createConjugationRow("je ", "donnais"));
+        Document document = createConjugationDocument(rows);
+        try {
+            Main.checkSelectors(document, "donner", "kebab", "Imparfait");
+            fail();
+        } catch (RuntimeException e) {
+            assertTrue(e.getMessage().endsWith("h4.card-title:contains(kebab)"));
+        }
+    }
+
+    /**
+     * Unhappy path. Missing auxiliary element in compound time.
+     * @throws Exception
+     */
+    @Test
+    public void testCheckSelectors7() throws Exception {
+        String rows = createConjugationRows(createConjugationRow("j'", "avais donn\u00e9"));
+        Document document = createConjugationDocument("Plus-que-parfait", rows);
+        try {
+            Main.checkSelectors(document, "donner", "INDICATIF", "Plus-que-parfait");
+            fail();
+        } catch (RuntimeException e) {
+            assertTrue(e.getMessage().endsWith(">auxiliary"));
+        }
+    }
+
+    /**
+     * Happy path. Auxiliary element present in compound time.
+     * @throws Exception
+     */
+    @Test
+    public void testCheckSelectors8() throws Exception {
+        String rows = createConjugationRows("<p><personal-pronoun>j'</personal-pronoun><auxiliary>avais</auxiliary>"
+                + "<verb>donn\u00e9</verb></p>");
+        Document document = createConjugationDocument("Plus-que-parfait", rows);
+        Main.checkSelectors(document, "donner", "INDICATIF", "Plus-que-parfait");
+    }
+
+    // ----------------------------------
+    // isCompoundTime
+    // ----------------------------------
+
+    /**
+     * Happy path. Test simple and compound times.
+     * @throws Exception
+     */
+    @Test
+    public void testIsCompoundTime() throws Exception {
+        assertTrue(Main.isCompoundTime("INDICATIF", "Plus-que-parfait"));
+        assertTrue(Main.isCompoundTime("INDICATIF", "Pass\u00e9 compos\u00e9"));
+        assertTrue(Main.isCompoundTime("CONDITIONNEL", "Pass\u00e9"));
+        assertTrue(Main.isCompoundTime("SUBJONCTIF", "Pass\u00e9"));
+        assertFalse(Main.isCompoundTime("INDICATIF", "Imparfait"));
+        assertFalse(Main.isCompoundTime("INDICATIF", "Pass\u00e9 simple"));
+        assertFalse(Main.isCompoundTime("CONDITIONNEL", "Pr\u00e9sent"));
+    }
+
     // ----------------------------------
     // formatConjugation
     // ----------------------------------
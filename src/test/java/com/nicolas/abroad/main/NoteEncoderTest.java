@@ -0,0 +1,155 @@
+package com.nicolas.abroad.main;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+
+/** Test class */
+public class NoteEncoderTest {
+
+    // ----------------------------------
+    // writeField
+    // ----------------------------------
+
+    /**
+     * Happy path. Csv field is quoted.
+     * @throws Exception
+     */
+    @Test
+    public void testWriteField1() throws Exception {
+        NoteEncoder encoder = new NoteEncoder(NoteEncoder.Format.CSV);
+        StringBuilder sb = new StringBuilder();
+        encoder.writeField(sb, "je donnais");
+        assertEquals("\"je donnais\"", sb.toString());
+    }
+
+    /**
+     * Happy path. Csv field with embedded quotes and semicolons.
+     * @throws Exception
+     */
+    @Test
+    public void testWriteField2() throws Exception {
+        NoteEncoder encoder = new NoteEncoder(NoteEncoder.Format.CSV);
+        StringBuilder sb = new StringBuilder();
+        encoder.writeField(sb, "il \"donne\"; elle donne");
+        assertEquals("\"il \"\"donne\"\"; elle donne\"", sb.toString());
+    }
+
+    /**
+     * Happy path. Tsv field with tabs, line breaks and quotes is quoted.
+     * @throws Exception
+     */
+    @Test
+    public void testWriteField3() throws Exception {
+        NoteEncoder encoder = new NoteEncoder(NoteEncoder.Format.TSV);
+        StringBuilder sb = new StringBuilder();
+        encoder.writeField(sb, "je\tdonne\r\n\"tu\" donnes");
+        assertEquals("\"je\tdonne\r\n\"\"tu\"\" donnes\"", sb.toString());
+
+        sb = new StringBuilder();
+        encoder.writeField(sb, "je donne");
+        assertEquals("je donne", sb.toString());
+    }
+
+    /**
+     * Happy path. Html field with special characters and line breaks.
+     * @throws Exception
+     */
+    @Test
+    public void testWriteField4() throws Exception {
+        NoteEncoder encoder = new NoteEncoder(NoteEncoder.Format.HTML);
+        StringBuilder sb = new StringBuilder();
+        encoder.writeField(sb, "<b>je</b> & \"tu\"\r\nil\tdonne");
+        assertEquals("&lt;b&gt;je&lt;/b&gt; &amp; &quot;tu&quot;<br>il donne", sb.toString());
+    }
+
+    /**
+     * Happy path. Empty field.
+     * @throws Exception
+     */
+    @Test
+    public void testWriteField5() throws Exception {
+        NoteEncoder encoder = new NoteEncoder(NoteEncoder.Format.CSV);
+        StringBuilder sb = new StringBuilder();
+        encoder.writeField(sb, "");
+        assertEquals("\"\"", sb.toString());
+    }
+
+    /**
+     * Happy path. Csv fields with embedded quotes and semicolons are read back
+     * as separate fields.
+     * @throws Exception
+     */
+    @Test
+    public void testWriteField6() throws Exception {
+        NoteEncoder encoder = new NoteEncoder(NoteEncoder.Format.CSV);
+        StringBuilder sb = new StringBuilder();
+        encoder.writeField(sb, "il \"donne\"; elle donne");
+        encoder.writeSeparator(sb);
+        encoder.writeField(sb, "je donne");
+        List<String> fields = parseCsvLine(sb.toString());
+        assertEquals(Arrays.asList("il \"donne\"; elle donne", "je donne"), fields);
+    }
+
+    /**
+     * Parse a csv line separated by semicolons. Quoted fields must start right
+     * after the separator, quotes inside quoted fields are doubled.
+     * @param line
+     * @return fields
+     */
+    private List<String> parseCsvLine(String line) {
+        List<String> fields = new ArrayList<>();
+        StringBuilder field = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (quoted) {
+                if (c != '"') {
+                    field.append(c);
+                } else if (i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                    field.append('"');
+                    i++;
+                } else {
+                    quoted = false;
+                }
+            } else if (c == '"' && field.length() == 0) {
+                quoted = true;
+            } else if (c == ';') {
+                fields.add(field.toString());
+                field.setLength(0);
+            } else {
+                field.append(c);
+            }
+        }
+        fields.add(field.toString());
+        return fields;
+    }
+
+    // ----------------------------------
+    // writeSeparator
+    // ----------------------------------
+
+    /**
+     * Happy path. Test all formats.
+     * @throws Exception
+     */
+    @Test
+    public void testWriteSeparator() throws Exception {
+        StringBuilder sb = new StringBuilder();
+        new NoteEncoder(NoteEncoder.Format.CSV).writeSeparator(sb);
+        assertEquals(";", sb.toString());
+
+        sb = new StringBuilder();
+        new NoteEncoder(NoteEncoder.Format.TSV).writeSeparator(sb);
+        assertEquals("\t", sb.toString());
+
+        sb = new StringBuilder();
+        new NoteEncoder(NoteEncoder.Format.HTML).writeSeparator(sb);
+        assertEquals("\t", sb.toString());
+    }
+
+}